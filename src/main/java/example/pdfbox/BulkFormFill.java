@@ -0,0 +1,447 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDButton;
+import org.apache.pdfbox.pdmodel.interactive.form.PDCheckBox;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDPushButton;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTerminalField;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills a tagged form, such as {@code PDFUA-Ref-2-10_Form.pdf}, once per record of a CSV or JSONL
+ * file and writes one PDF per record.
+ * <p>
+ * Records are streamed; the file is never loaded as a whole. Every worker thread parses the template
+ * once and builds a fully-qualified-name index of its terminal fields once, instead of walking the
+ * field tree with {@code acroForm.getField(...)} for every value. Per record the worker sets the
+ * values (which regenerates the appearances), saves, and then restores the touched fields to the
+ * template state. Values and appearances are changed in place on the existing field and widget
+ * dictionaries, so the widget /StructParent and the /Form /OBJR linkage stay intact. Every output
+ * gets its own trailer /ID and fresh XMP and /Info modification dates.
+ * <p>
+ * The template is checked once with {@link PdfUaFormCheck} before any record is read. A template
+ * that fails is fixed with {@link FixPdfUaStructureParallel}, and rejected if it still fails.
+ * <p>
+ * CSV: the header row holds the field names, fields may be quoted ({@code ""} escapes a quote).
+ * JSONL: one flat object per line, e.g. {@code {"example.text.text": "Hello", "example.checkbox.A": true}}.
+ * Check boxes accept true/yes/on/1 or their on-value; radio buttons take an export value.
+ * <p>
+ * Usage: {@code BulkFormFill [template.pdf] [records.csv|records.jsonl] [outDir] [threads]}
+ */
+public class BulkFormFill {
+    private static final int QUEUE_PER_THREAD = 16;
+    /** Failure messages kept in the result; further failures are only counted. */
+    private static final int MAX_REPORTED_FAILURES = 100;
+    private static final SecureRandom ID_RANDOM = new SecureRandom();
+
+    public static void main(String[] args) throws Exception {
+        Path template = Path.of(args.length > 0 ? args[0] : "PDFUA-Ref-2-10_Form.pdf");
+        Path records = Path.of(args.length > 1 ? args[1] : "records.csv");
+        Path outDir = Path.of(args.length > 2 ? args[2] : "target/filled");
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        Result result = fill(template, records, outDir, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "✅ %d filled, %d failed in %.1f s (%.1f docs/s) -> %s%n",
+                result.filled, result.failed, seconds, result.filled / seconds, outDir);
+        result.failures.forEach(f -> System.out.println("   " + f));
+        if (result.failed > result.failures.size()) {
+            System.out.println("   ... and " + (result.failed - result.failures.size()) + " more");
+        }
+    }
+
+    /**
+     * Outcome of a bulk run. {@code failures} holds "record n: message" for at most
+     * {@value #MAX_REPORTED_FAILURES} of the {@code failed} records.
+     */
+    public static final class Result {
+        public final int filled;
+        public final int failed;
+        public final List<String> failures;
+
+        Result(int filled, int failed, List<String> failures) {
+            this.filled = filled;
+            this.failed = failed;
+            this.failures = failures;
+        }
+    }
+
+    /**
+     * Fills {@code template} once per record and writes {@code record-<n>.pdf} files to {@code outDir}.
+     * A record that fails (unknown field, invalid value, even an {@link Error} such as
+     * OutOfMemoryError) is counted and does not stop the run. After an Error the worker drops its
+     * template copy, which may be half-filled, and parses a fresh one for its next record.
+     *
+     * @throws IOException if the template cannot be read or made to pass {@link PdfUaFormCheck}
+     */
+    public static Result fill(Path template, Path records, Path outDir, int threads) throws IOException, InterruptedException {
+        String templateName = template.getFileName().toString();
+        byte[] templateBytes = checkedTemplate(Files.readAllBytes(template), templateName);
+        Files.createDirectories(outDir);
+
+        Set<FormFiller> fillers = ConcurrentHashMap.newKeySet();
+        ThreadLocal<FormFiller> perThread = new ThreadLocal<>();
+        AtomicInteger filled = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        // bounded queue + caller-runs: the reader never gets far ahead of the workers
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+        boolean jsonl = records.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jsonl");
+        try (BufferedReader reader = Files.newBufferedReader(records, StandardCharsets.UTF_8)) {
+            List<String> header = jsonl ? null : RecordParser.csvFields(reader);
+            int number = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isBlank()) continue;
+                int recordNumber = ++number;
+                String text = line;
+                pool.execute(() -> {
+                    try {
+                        Map<String, String> record = jsonl
+                                ? RecordParser.jsonObject(text)
+                                : RecordParser.csvRecord(header, text);
+                        FormFiller filler = perThread.get();
+                        if (filler == null) {
+                            filler = new FormFiller(templateBytes, templateName);
+                            perThread.set(filler);
+                            fillers.add(filler);
+                        }
+                        File out = outDir.resolve(String.format(Locale.ROOT, "record-%06d.pdf", recordNumber)).toFile();
+                        filler.fillAndSave(record, out);
+                        filled.incrementAndGet();
+                    } catch (Throwable t) {
+                        if (!(t instanceof Exception)) {
+                            FormFiller broken = perThread.get();
+                            perThread.remove();
+                            if (broken != null && fillers.remove(broken)) closeQuietly(broken);
+                        }
+                        if (failed.incrementAndGet() <= MAX_REPORTED_FAILURES) {
+                            failures.add("record " + recordNumber + ": "
+                                    + (t instanceof Exception ? t.getMessage() : t.toString()));
+                        }
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            for (FormFiller filler : fillers) {
+                filler.close();
+            }
+        }
+        return new Result(filled.get(), failed.get(), failures);
+    }
+
+    /**
+     * Checks the template once and, if it fails, fixes its structure and metadata.
+     *
+     * @return {@code template} if it passes, otherwise the fixed template
+     */
+    static byte[] checkedTemplate(byte[] template, String templateName) throws IOException {
+        try (PDDocument doc = new PDFParser(new RandomAccessReadBuffer(template)).parse()) {
+            if (doc.getDocumentCatalog().getAcroForm() == null) throw new IOException("No AcroForm present");
+            if (PdfUaFormCheck.check(doc).isEmpty()) return template;
+
+            FixPdfUaStructureParallel.fixStructure(doc, templateName, ForkJoinPool.commonPool());
+            List<String> problems = PdfUaFormCheck.check(doc);
+            if (!problems.isEmpty()) {
+                throw new IOException(templateName + " fails the PDF/UA check after fixing: " + String.join("; ", problems));
+            }
+            ByteArrayOutputStream fixed = new ByteArrayOutputStream(template.length);
+            doc.save(fixed);
+            return fixed.toByteArray();
+        }
+    }
+
+    private static void closeQuietly(FormFiller filler) {
+        try {
+            filler.close();
+        } catch (IOException | RuntimeException e) {
+            // the copy is discarded anyway
+        }
+    }
+
+    /** One parsed copy of the template plus its field index; confined to one thread. */
+    static final class FormFiller implements AutoCloseable {
+        private final PDDocument doc;
+        private final String templateName;
+        private final Map<String, IndexedField> index = new HashMap<>();
+
+        /** @param template a template that passed {@link #checkedTemplate} */
+        FormFiller(byte[] template, String templateName) throws IOException {
+            doc = new PDFParser(new RandomAccessReadBuffer(template)).parse();
+            this.templateName = templateName;
+            PDAcroForm acroForm = doc.getDocumentCatalog().getAcroForm();
+            if (acroForm == null) throw new IOException("No AcroForm present");
+            acroForm.setNeedAppearances(false);
+
+            for (PDField field : acroForm.getFieldTree()) {
+                if (field instanceof PDTerminalField
+                        && !(field instanceof PDSignatureField) && !(field instanceof PDPushButton)) {
+                    index.put(field.getFullyQualifiedName(), new IndexedField((PDTerminalField) field));
+                }
+            }
+        }
+
+        void fillAndSave(Map<String, String> record, File out) throws IOException {
+            List<IndexedField> touched = new ArrayList<>(record.size());
+            try {
+                for (Map.Entry<String, String> value : record.entrySet()) {
+                    IndexedField field = index.get(value.getKey());
+                    if (field == null) throw new IllegalArgumentException("unknown field '" + value.getKey() + "'");
+                    touched.add(field);
+                    field.set(value.getValue());
+                }
+                // each output is a new document: its own /ID, and the modification dates of this save
+                PdfUaXmp.apply(doc, templateName);
+                doc.getDocument().getTrailer().setItem(COSName.ID, newId());
+                // the default (object stream) save renumbers objects; an uncompressed save of a reused
+                // document keeps raising object numbers and its xref table grows with every record
+                doc.save(out);
+            } finally {
+                for (IndexedField field : touched) {
+                    field.restore();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            doc.close();
+        }
+
+        /** Two equal random identifiers, as for a newly created file. */
+        private static COSArray newId() {
+            byte[] bytes = new byte[16];
+            ID_RANDOM.nextBytes(bytes);
+            COSString id = new COSString(bytes);
+            COSArray ids = new COSArray();
+            ids.add(id);
+            ids.add(id);
+            return ids;
+        }
+    }
+
+    /** A terminal field with the template state of its value and widget appearances. */
+    private static final class IndexedField {
+        private final PDTerminalField field;
+        private final COSBase templateValue;
+        private final COSBase templateSelection;
+        private final COSDictionary[] widgets;
+        private final COSBase[] templateAppearance;
+        private final COSBase[] templateState;
+
+        IndexedField(PDTerminalField field) {
+            this.field = field;
+            this.templateValue = field.getCOSObject().getItem(COSName.V);
+            // choice fields also keep the selected option indices, which setValue replaces
+            this.templateSelection = field.getCOSObject().getItem(COSName.I);
+            List<PDAnnotationWidget> widgetList = field.getWidgets();
+            widgets = new COSDictionary[widgetList.size()];
+            templateAppearance = new COSBase[widgets.length];
+            templateState = new COSBase[widgets.length];
+            for (int i = 0; i < widgets.length; i++) {
+                widgets[i] = widgetList.get(i).getCOSObject();
+                templateAppearance[i] = widgets[i].getItem(COSName.AP);
+                templateState[i] = widgets[i].getItem(COSName.AS);
+            }
+        }
+
+        void set(String value) throws IOException {
+            if (field instanceof PDCheckBox) {
+                PDCheckBox checkBox = (PDCheckBox) field;
+                String v = value.trim().toLowerCase(Locale.ROOT);
+                if (v.equals("true") || v.equals("yes") || v.equals("on") || v.equals("1")
+                        || value.equals(checkBox.getOnValue())) {
+                    checkBox.check();
+                } else {
+                    checkBox.unCheck();
+                }
+            } else if (field instanceof PDButton) {
+                field.setValue(value); // radio buttons only switch /AS between existing appearances
+            } else {
+                // PDFBox rewrites an existing appearance stream in place, which would destroy the
+                // template appearance; with an empty /AP it creates a new stream instead
+                for (COSDictionary widget : widgets) {
+                    widget.setItem(COSName.AP, new COSDictionary());
+                }
+                field.setValue(value);
+            }
+        }
+
+        /** Puts back the template /V, /I, /AP and /AS objects; the widget dictionaries themselves are untouched. */
+        void restore() {
+            field.getCOSObject().setItem(COSName.V, templateValue);
+            field.getCOSObject().setItem(COSName.I, templateSelection);
+            for (int i = 0; i < widgets.length; i++) {
+                widgets[i].setItem(COSName.AP, templateAppearance[i]);
+                widgets[i].setItem(COSName.AS, templateState[i]);
+            }
+        }
+    }
+
+    /** Minimal CSV and flat-JSON record parsing, enough for field-name/value records. */
+    static final class RecordParser {
+        private RecordParser() {
+        }
+
+        static List<String> csvFields(BufferedReader reader) throws IOException {
+            String header = reader.readLine();
+            if (header == null) throw new IOException("CSV file has no header row");
+            return csvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        }
+
+        static Map<String, String> csvRecord(List<String> header, String line) {
+            List<String> values = csvLine(line);
+            if (values.size() > header.size()) {
+                throw new IllegalArgumentException(values.size() + " values for " + header.size() + " columns");
+            }
+            Map<String, String> record = new LinkedHashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                // an empty cell leaves the template value
+                if (!values.get(i).isEmpty()) record.put(header.get(i), values.get(i));
+            }
+            return record;
+        }
+
+        /** Splits one CSV line; quoted values may contain commas and {@code ""}, but not line breaks. */
+        static List<String> csvLine(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            if (quoted) throw new IllegalArgumentException("unterminated quote");
+            values.add(value.toString());
+            return values;
+        }
+
+        /** Parses a flat JSON object; strings, numbers, booleans and null (skipped) as values. */
+        static Map<String, String> jsonObject(String line) {
+            Map<String, String> record = new LinkedHashMap<>();
+            int[] pos = {skipSpace(line, 0)};
+            expect(line, pos, '{');
+            if (peek(line, pos) == '}') return record;
+            while (true) {
+                String key = jsonString(line, pos);
+                expect(line, pos, ':');
+                String value = jsonValue(line, pos);
+                if (value != null) record.put(key, value);
+                char next = peek(line, pos);
+                pos[0]++;
+                if (next == '}') return record;
+                if (next != ',') throw new IllegalArgumentException("expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+
+        private static String jsonValue(String s, int[] pos) {
+            char c = peek(s, pos);
+            if (c == '"') return jsonString(s, pos);
+            if (c == '{' || c == '[') throw new IllegalArgumentException("nested values are not supported at " + pos[0]);
+
+            int start = pos[0];
+            while (pos[0] < s.length() && ",} \t".indexOf(s.charAt(pos[0])) < 0) pos[0]++;
+            String literal = s.substring(start, pos[0]);
+            if (literal.isEmpty()) throw new IllegalArgumentException("missing value at " + start);
+            return literal.equals("null") ? null : literal;
+        }
+
+        private static String jsonString(String s, int[] pos) {
+            expect(s, pos, '"');
+            StringBuilder sb = new StringBuilder();
+            while (pos[0] < s.length()) {
+                char c = s.charAt(pos[0]++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (pos[0] >= s.length()) break;
+                char e = s.charAt(pos[0]++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos[0] + 4 > s.length()) throw new IllegalArgumentException("bad \\u escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos[0], pos[0] + 4), 16));
+                        pos[0] += 4;
+                        break;
+                    default: sb.append(e); break;
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+
+        private static void expect(String s, int[] pos, char c) {
+            if (peek(s, pos) != c) throw new IllegalArgumentException("expected '" + c + "' at " + pos[0]);
+            pos[0]++;
+        }
+
+        /** Skips whitespace and returns the next character, 0 at the end of the line. */
+        private static char peek(String s, int[] pos) {
+            pos[0] = skipSpace(s, pos[0]);
+            return pos[0] < s.length() ? s.charAt(pos[0]) : 0;
+        }
+
+        private static int skipSpace(String s, int i) {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            return i;
+        }
+    }
+}
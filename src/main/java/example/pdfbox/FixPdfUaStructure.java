@@ -86,6 +86,14 @@ public class FixPdfUaStructure {
                 // -- Step 7: Add required PDF/UA metadata
                 catalog.setLanguage("en-US");
 
+                // Tab order must follow the structure tree on every page with annotations
+                for (PDPage page : doc.getPages()) {
+                    COSArray annots = page.getCOSObject().getCOSArray(COSName.ANNOTS);
+                    if (annots != null && annots.size() > 0) {
+                        page.getCOSObject().setItem(WidgetReadingOrder.TABS, COSName.S);
+                    }
+                }
+
 //                COSDictionary markInfo = new COSDictionary();
 //                markInfo.setBoolean(COSName.MARKED, true);
 //                catalogDict.setItem(COSName.MARK_INFO, markInfo);
@@ -93,6 +101,9 @@ public class FixPdfUaStructure {
                 markInfo.setMarked(true);
                 catalog.setMarkInfo(markInfo);
 
+                // XMP metadata with pdfuaid:part and dc:title
+                PdfUaXmp.apply(doc, inputPath.getFileName().toString());
+
                 // Save the updated file
                 doc.save(dest);
                 System.out.println("✅ PDF fixed and saved to: " + dest);
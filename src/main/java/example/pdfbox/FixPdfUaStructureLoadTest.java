@@ -0,0 +1,224 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end load driver: runs {@link FixPdfUaStructureParallel} over a corpus at increasing
+ * concurrency and prints, per level, throughput, latency percentiles, heap high-water mark and
+ * the {@link PdfUaFormCheck} pass rate.
+ * <p>
+ * {@value #WARM_UP_PASSES} untimed passes over the corpus run first, so that the first level does not pay for class
+ * loading and JIT compilation. Each worker thread runs the fixer on its own one-thread
+ * {@link ForkJoinPool}, so "threads" is the number of documents being fixed at the same time and
+ * also the number of threads doing it. The heap column is the highest total heap use sampled
+ * every {@value #HEAP_SAMPLE_MILLIS} ms during the timed phase.
+ * <p>
+ * Throughput, latency and heap only cover parsing, fixing and saving. The fixed documents are
+ * validated after that timed phase, on the same threads, and its time is reported separately
+ * as "check s". Only the last iteration of each document is kept and validated, which bounds the
+ * retained output to one copy of the corpus.
+ * <p>
+ * Usage: {@code FixPdfUaStructureLoadTest [corpusDir] [maxConcurrency] [iterations]}. When the corpus
+ * directory holds no PDFs, a mixed corpus is generated there with {@link SyntheticFormCorpus}.
+ * Escalation stops at the first level where jobs fail (e.g. OutOfMemoryError).
+ */
+public class FixPdfUaStructureLoadTest {
+    private static final SyntheticFormCorpus.Spec[] DEFAULT_CORPUS = {
+            new SyntheticFormCorpus.Spec(1, 1, 0, SyntheticFormCorpus.TagState.UNTAGGED),
+            new SyntheticFormCorpus.Spec(10, 8, 1, SyntheticFormCorpus.TagState.PARTIAL),
+            new SyntheticFormCorpus.Spec(50, 20, 2, SyntheticFormCorpus.TagState.TAGGED),
+            new SyntheticFormCorpus.Spec(500, 10, 3, SyntheticFormCorpus.TagState.UNTAGGED),
+    };
+    private static final int DOCUMENTS_PER_SPEC = 4;
+    private static final int HEAP_SAMPLE_MILLIS = 10;
+    /** Untimed passes over the corpus before the first level; one pass still left level 1 half-compiled. */
+    private static final int WARM_UP_PASSES = 5;
+
+    public static void main(String[] args) throws Exception {
+        Path corpusDir = Path.of(args.length > 0 ? args[0] : "target/load-corpus");
+        int maxConcurrency = args.length > 1 ? Integer.parseInt(args[1]) : 2 * Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        List<Path> corpus = listPdfs(corpusDir);
+        if (corpus.isEmpty()) {
+            System.out.println("Generating corpus in " + corpusDir);
+            for (SyntheticFormCorpus.Spec spec : DEFAULT_CORPUS) {
+                corpus.addAll(SyntheticFormCorpus.generate(corpusDir, spec, DOCUMENTS_PER_SPEC));
+            }
+        }
+        // documents are read once, jobs parse from memory so that disk I/O is not measured
+        List<byte[]> documents = new ArrayList<>(corpus.size());
+        for (Path file : corpus) {
+            documents.add(Files.readAllBytes(file));
+        }
+        System.out.printf(Locale.ROOT, "%d documents, %d iteration(s), max heap %d MB%n",
+                documents.size(), iterations, Runtime.getRuntime().maxMemory() >> 20);
+        LevelResult warmUp = runLevel(documents, 1, WARM_UP_PASSES);
+        System.out.printf(Locale.ROOT, "Warm-up: %d pass(es), %d failed%n", WARM_UP_PASSES, warmUp.failed);
+        System.out.println("threads   docs/s    p50 ms    p90 ms    p99 ms    max ms   heap MB   pass %  failed   check s");
+
+        for (int threads = 1; threads <= maxConcurrency; threads *= 2) {
+            LevelResult result = runLevel(documents, threads, iterations);
+            System.out.println(result.format(threads));
+            if (result.failed > 0) {
+                System.out.println("Stopping: " + result.failed + " job(s) failed at concurrency " + threads
+                        + ", first error: " + result.firstError);
+                break;
+            }
+        }
+    }
+
+    private static LevelResult runLevel(List<byte[]> documents, int threads, int iterations) throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        AtomicLong heapPeak = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> heapPeak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        int jobs = documents.size() * iterations;
+        long[] latencies = new long[jobs];
+        byte[][] fixed = new byte[documents.size()][];
+        LevelResult result = new LevelResult();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // one single-threaded fork-join pool per worker, so the fixer does not fan out further
+        Queue<ForkJoinPool> fixerPools = new ConcurrentLinkedQueue<>();
+        ThreadLocal<ForkJoinPool> fixerPool = ThreadLocal.withInitial(() -> {
+            ForkJoinPool pool = new ForkJoinPool(1);
+            fixerPools.add(pool);
+            return pool;
+        });
+
+        // -- Timed phase: parse, fix and save
+        List<Future<?>> futures = new ArrayList<>(jobs);
+        long start = System.nanoTime();
+        for (int j = 0; j < jobs; j++) {
+            int job = j;
+            int index = j % documents.size();
+            futures.add(executor.submit(() -> {
+                long t0 = System.nanoTime();
+                byte[] output = fix(documents.get(index), "job-" + job, fixerPool.get());
+                latencies[job] = System.nanoTime() - t0;
+                fixed[index] = output;
+                return null;
+            }));
+        }
+        awaitAll(futures, result);
+        long elapsed = System.nanoTime() - start;
+        sampler.shutdownNow();
+        result.heapPeakMb = Math.max(heapPeak.get(), memory.getHeapMemoryUsage().getUsed()) >> 20;
+
+        // -- Validation, outside the timed window
+        AtomicInteger passed = new AtomicInteger();
+        int validated = 0;
+        futures.clear();
+        long checkStart = System.nanoTime();
+        for (byte[] output : fixed) {
+            if (output == null) continue;
+            validated++;
+            futures.add(executor.submit(() -> {
+                if (validate(output)) passed.incrementAndGet();
+                return null;
+            }));
+        }
+        awaitAll(futures, result);
+        result.checkSeconds = (System.nanoTime() - checkStart) / 1e9;
+        executor.shutdown();
+        fixerPools.forEach(ForkJoinPool::shutdown);
+
+        result.docsPerSecond = (jobs - result.failed) / (elapsed / 1e9);
+        result.latenciesMs = Arrays.stream(latencies).filter(l -> l > 0).sorted().mapToDouble(l -> l / 1e6).toArray();
+        result.passRate = validated == 0 ? 0 : 100.0 * passed.get() / validated;
+        return result;
+    }
+
+    private static void awaitAll(List<Future<?>> futures, LevelResult result) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (result.failed++ == 0) result.firstError = String.valueOf(e.getCause());
+            }
+        }
+    }
+
+    /** Parses, fixes and serialises one document, the part a production request pays for. */
+    private static byte[] fix(byte[] document, String title, ForkJoinPool pool) throws IOException {
+        PDFParser parser = new PDFParser(new RandomAccessReadBuffer(document));
+        try (PDDocument doc = parser.parse()) {
+            FixPdfUaStructureParallel.fixStructure(doc, title, pool);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(document.length + document.length / 4);
+            doc.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static boolean validate(byte[] fixed) throws IOException {
+        PDFParser parser = new PDFParser(new RandomAccessReadBuffer(fixed));
+        try (PDDocument doc = parser.parse()) {
+            return PdfUaFormCheck.check(doc).isEmpty();
+        }
+    }
+
+    private static List<Path> listPdfs(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".pdf"))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static final class LevelResult {
+        double docsPerSecond;
+        double[] latenciesMs;
+        long heapPeakMb;
+        double passRate;
+        int failed;
+        String firstError;
+        double checkSeconds;
+
+        String format(int threads) {
+            return String.format(Locale.ROOT, "%7d %8.1f %9.1f %9.1f %9.1f %9.1f %9d %8.1f %7d %9.2f",
+                    threads, docsPerSecond, percentile(50), percentile(90), percentile(99), percentile(100),
+                    heapPeakMb, passRate, failed, checkSeconds);
+        }
+
+        /** Nearest-rank percentile of the successful jobs. */
+        private double percentile(double p) {
+            if (latenciesMs.length == 0) return Double.NaN;
+            int rank = (int) Math.ceil(p / 100 * latenciesMs.length);
+            return latenciesMs[Math.max(0, rank - 1)];
+        }
+    }
+}
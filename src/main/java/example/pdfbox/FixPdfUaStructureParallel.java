@@ -0,0 +1,343 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join variant of {@link FixPdfUaStructure} for single very large documents.
+ * <p>
+ * Every widget annotation that is not correctly tagged gets its own /Form structure element with an
+ * /OBJR kid, in {@link WidgetReadingOrder reading order} of the page as displayed, and every page
+ * with annotations gets /Tabs /S. A widget counts as tagged when {@link PdfUaFormCheck} would accept it: its
+ * /StructParent leads to a /Form element with an /OBJR back to it. Untagged documents get a new
+ * structure tree with one /Document element. An existing structure tree is kept: the new /Form
+ * elements are appended to its top-level grouping element (/Document, /Part, /Sect or /Div), or the
+ * existing kids are wrapped in a new /Document first, and their keys start after every key already
+ * in use.
+ * <p>
+ * PDFBox documents are not thread-safe and most of the cost on a freshly parsed file is the lazy
+ * parsing of indirect objects, which always goes through the one document parser. Therefore:
+ * <ul>
+ *     <li>a serial pass on the calling thread resolves /Annots, the widgets, their /Rect and the
+ *     /Parent chains (and with them every object the later phases read) and decides which widgets
+ *     need a tag;</li>
+ *     <li>building the /Form + /OBJR dictionaries and sorting each page into reading order runs on a
+ *     {@link ForkJoinPool} without locks, it only reads objects that are already loaded and only
+ *     writes to the dictionaries it creates itself;</li>
+ *     <li>StructParent keys, the /Document kids and the ParentTree are committed on the
+ *     calling thread in page order, so the keys are contiguous and the output does not
+ *     depend on scheduling.</li>
+ * </ul>
+ */
+public class FixPdfUaStructureParallel {
+    /** Number of pages scanned by one leaf task. */
+    private static final int PAGES_PER_TASK = 32;
+
+    private static final COSName WIDGET = COSName.getPDFName("Widget");
+    private static final COSName STRUCT_ELEM = COSName.getPDFName("StructElem");
+    private static final COSName FORM = COSName.getPDFName("Form");
+    private static final COSName DOCUMENT = COSName.getPDFName("Document");
+    /** Standard structure types the new /Form elements may be appended to. */
+    private static final Set<COSName> GROUPING = Set.of(DOCUMENT, COSName.getPDFName("Part"),
+            COSName.getPDFName("Sect"), COSName.getPDFName("Div"));
+
+    public static void main(String[] args) throws IOException {
+        String src = args.length > 0 ? args[0] : "to_fix.pdf";
+        String dest = args.length > 1 ? args[1] : "output_fixed_parallel.pdf";
+        new File(dest).delete();
+
+        try (RandomAccessRead rar = new RandomAccessReadBufferedFile(Path.of(src))) {
+            PDFParser parser = new PDFParser(rar);
+            try (PDDocument doc = parser.parse()) {
+                int tagged = fixStructure(doc, Path.of(src).getFileName().toString(), ForkJoinPool.commonPool());
+
+                doc.save(dest);
+                System.out.println("✅ " + tagged + " widget(s) tagged, PDF saved to: " + dest);
+            }
+        }
+    }
+
+    /**
+     * Tags the widgets of {@code doc} with {@link #tagWidgets} and adds the catalog entries and XMP
+     * metadata PDF/UA requires.
+     *
+     * @param defaultTitle the XMP/Info title to use when the document has none
+     * @return the number of widgets that were tagged
+     */
+    public static int fixStructure(PDDocument doc, String defaultTitle, ForkJoinPool pool) throws IOException {
+        int tagged = tagWidgets(doc, pool);
+
+        PDDocumentCatalog catalog = doc.getDocumentCatalog();
+        if (catalog.getLanguage() == null) {
+            catalog.setLanguage("en-US");
+        }
+        PDMarkInfo markInfo = new PDMarkInfo();
+        markInfo.setMarked(true);
+        catalog.setMarkInfo(markInfo);
+        PdfUaXmp.apply(doc, defaultTitle);
+        return tagged;
+    }
+
+    /**
+     * Links every widget annotation of {@code doc} that is not tagged yet to its own /Form element
+     * and sets /Tabs /S on pages with annotations. Only the structure tree, the widgets and the
+     * pages are changed; a document whose widgets are all tagged keeps its structure tree as it is.
+     *
+     * @return the number of widgets that were tagged
+     */
+    public static int tagWidgets(PDDocument doc, ForkJoinPool pool) {
+        PDDocumentCatalog catalog = doc.getDocumentCatalog();
+        if (catalog.getAcroForm() == null) throw new RuntimeException("No AcroForm present");
+
+        // -- Step 1: Collect the page dictionaries (the page tree walk itself is not thread-safe)
+        List<COSDictionary> pages = new ArrayList<>(doc.getNumberOfPages());
+        int[] rotations = new int[doc.getNumberOfPages()];
+        for (PDPage page : doc.getPages()) {
+            rotations[pages.size()] = page.getRotation(); // /Rotate is inheritable
+            pages.add(page.getCOSObject());
+        }
+
+        // -- Step 2: Serial pass, resolves every object the parallel phase reads
+        COSDictionary structTreeRoot = catalog.getCOSObject().getCOSDictionary(COSName.STRUCT_TREE_ROOT);
+        boolean keepTree = structTreeRoot != null;
+        Map<Integer, COSBase> parentTree = PdfUaFormCheck.parentTree(structTreeRoot);
+        WidgetTag[][] tagsByPage = new WidgetTag[pages.size()][];
+        for (int p = 0; p < pages.size(); p++) {
+            tagsByPage[p] = untaggedWidgets(pages.get(p), parentTree);
+        }
+
+        // -- Step 3: Build the /Form + /OBJR dictionaries in parallel, in reading order
+        pool.invoke(new BuildPages(pages, rotations, tagsByPage, 0, pages.size()));
+
+        // -- Step 4: Single-threaded commit, in page order
+        int untagged = 0;
+        for (int p = 0; p < pages.size(); p++) {
+            COSArray annots = pages.get(p).getCOSArray(COSName.ANNOTS);
+            if (annots != null && annots.size() > 0) {
+                // tab order follows the structure tree, on every page with annotations
+                pages.get(p).setItem(WidgetReadingOrder.TABS, COSName.S);
+            }
+            untagged += tagsByPage[p].length;
+        }
+        if (keepTree && untagged == 0) return 0;
+
+        COSArray nums = new COSArray();
+        int nextKey = 0;
+        COSDictionary parentElem;
+        if (keepTree) {
+            // existing entries first, new keys start after every key in use
+            int maxKey = TaggedDocumentMerger.appendParentTree(structTreeRoot.getCOSDictionary(COSName.PARENT_TREE), 0, nums);
+            nextKey = Math.max(maxKey + 1, structTreeRoot.getInt(COSName.PARENT_TREE_NEXT_KEY, 0));
+            for (COSDictionary page : pages) {
+                nextKey = Math.max(nextKey, page.getInt(COSName.STRUCT_PARENTS) + 1);
+            }
+            parentElem = groupingElement(structTreeRoot);
+        } else {
+            structTreeRoot = new COSDictionary();
+            structTreeRoot.setItem(COSName.TYPE, COSName.STRUCT_TREE_ROOT);
+
+            parentElem = new COSDictionary();
+            parentElem.setItem(COSName.TYPE, STRUCT_ELEM);
+            parentElem.setItem(COSName.S, DOCUMENT);
+            parentElem.setItem(COSName.P, structTreeRoot);
+            structTreeRoot.setItem(COSName.K, parentElem);
+            catalog.getCOSObject().setItem(COSName.STRUCT_TREE_ROOT, structTreeRoot);
+        }
+        COSArray parentKids = kidsArray(parentElem);
+
+        int firstKey = nextKey;
+        for (int p = 0; p < tagsByPage.length; p++) {
+            for (WidgetTag tag : tagsByPage[p]) {
+                tag.formElem.setItem(COSName.P, parentElem);
+                parentKids.add(tag.formElem);
+
+                tag.widget.setInt(COSName.STRUCT_PARENT, nextKey);
+                nums.add(COSInteger.get(nextKey)); // key = StructParent
+                nums.add(tag.formElem);            // value = Form StructElem
+                nextKey++;
+            }
+        }
+
+        structTreeRoot.setItem(COSName.PARENT_TREE, TaggedDocumentMerger.buildNumberTree(nums));
+        structTreeRoot.setInt(COSName.PARENT_TREE_NEXT_KEY, nextKey);
+        return nextKey - firstKey;
+    }
+
+    /**
+     * The single top-level grouping element of an existing tree. If there is none, the kids of
+     * the root are moved under a new /Document element, so that /Form elements never end up
+     * inside another /Form or directly under the root.
+     */
+    private static COSDictionary groupingElement(COSDictionary structTreeRoot) {
+        COSBase k = structTreeRoot.getDictionaryObject(COSName.K);
+        if (k instanceof COSDictionary && GROUPING.contains(standardType((COSDictionary) k, structTreeRoot))) {
+            return (COSDictionary) k;
+        }
+
+        COSArray kids = kidsArray(structTreeRoot);
+        COSDictionary docElem = new COSDictionary();
+        docElem.setItem(COSName.TYPE, STRUCT_ELEM);
+        docElem.setItem(COSName.S, DOCUMENT);
+        docElem.setItem(COSName.P, structTreeRoot);
+        for (int i = 0; i < kids.size(); i++) {
+            COSBase kid = kids.getObject(i);
+            if (kid instanceof COSDictionary) ((COSDictionary) kid).setItem(COSName.P, docElem);
+        }
+        docElem.setItem(COSName.K, kids);
+        structTreeRoot.setItem(COSName.K, docElem);
+        return docElem;
+    }
+
+    /** The /S of a structure element, followed through the /RoleMap of the root. */
+    private static COSName standardType(COSDictionary elem, COSDictionary structTreeRoot) {
+        COSName type = elem.getCOSName(COSName.S);
+        COSDictionary roleMap = structTreeRoot.getCOSDictionary(COSName.ROLE_MAP);
+        // bounded, a malformed /RoleMap may be cyclic
+        for (int depth = 0; type != null && roleMap != null && depth < 8; depth++) {
+            COSName mapped = roleMap.getCOSName(type);
+            if (mapped == null || mapped.equals(type)) break;
+            type = mapped;
+        }
+        return type;
+    }
+
+    /** The /K of a structure element or root as an array, converting a single kid in place. */
+    private static COSArray kidsArray(COSDictionary elem) {
+        COSBase k = elem.getDictionaryObject(COSName.K);
+        if (k instanceof COSArray) return (COSArray) k;
+
+        COSArray kids = new COSArray();
+        if (k != null) kids.add(elem.getItem(COSName.K));
+        elem.setItem(COSName.K, kids);
+        return kids;
+    }
+
+    /**
+     * A widget annotation, the values read from it in the serial pass and the /Form element built
+     * for it. The element's /P and the widget's /StructParent are only set during the commit phase.
+     */
+    private static final class WidgetTag {
+        final COSDictionary widget;
+        final float[] rect;
+        final COSString tooltip;
+        COSDictionary formElem;
+
+        WidgetTag(COSDictionary widget, float[] rect, COSString tooltip) {
+            this.widget = widget;
+            this.rect = rect;
+            this.tooltip = tooltip;
+        }
+    }
+
+    /** Splits the page range in halves until it is small enough to build directly. */
+    private static final class BuildPages extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<COSDictionary> pages;
+        private final transient int[] rotations;
+        private final transient WidgetTag[][] tags;
+        private final int from;
+        private final int to;
+
+        BuildPages(List<COSDictionary> pages, int[] rotations, WidgetTag[][] tags, int from, int to) {
+            this.pages = pages;
+            this.rotations = rotations;
+            this.tags = tags;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PAGES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    tags[i] = buildPage(pages.get(i), rotations[i], tags[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BuildPages(pages, rotations, tags, from, mid), new BuildPages(pages, rotations, tags, mid, to));
+        }
+    }
+
+    /**
+     * Serial pass over one page: resolves its widgets and returns those that are not tagged yet,
+     * with their /Rect and tooltip already read.
+     */
+    private static WidgetTag[] untaggedWidgets(COSDictionary page, Map<Integer, COSBase> parentTree) {
+        COSArray annots = page.getCOSArray(COSName.ANNOTS);
+        if (annots == null) return new WidgetTag[0];
+
+        List<WidgetTag> tags = new ArrayList<>();
+        for (int i = 0; i < annots.size(); i++) {
+            COSBase annot = annots.getObject(i);
+            if (!(annot instanceof COSDictionary)) continue;
+
+            COSDictionary widget = (COSDictionary) annot;
+            if (!WIDGET.equals(widget.getCOSName(COSName.SUBTYPE))) continue;
+            if (PdfUaFormCheck.isTagged(widget, parentTree)) continue;
+
+            tags.add(new WidgetTag(widget, WidgetReadingOrder.rectOf(widget), fieldTooltip(widget)));
+        }
+        return tags.toArray(new WidgetTag[0]);
+    }
+
+    /** Parallel phase: creates the /Form + /OBJR dictionaries of one page and sorts them into reading order. */
+    private static WidgetTag[] buildPage(COSDictionary page, int rotation, WidgetTag[] tags) {
+        for (WidgetTag tag : tags) {
+            // Create /OBJR referencing the widget
+            COSDictionary objr = new COSDictionary();
+            objr.setItem(COSName.TYPE, COSName.OBJR);
+            objr.setItem(COSName.PG, page);
+            objr.setItem(COSName.OBJ, tag.widget);
+
+            // Build the StructElem of role /Form
+            COSDictionary formElem = new COSDictionary();
+            formElem.setItem(COSName.TYPE, STRUCT_ELEM);
+            formElem.setItem(COSName.S, FORM);
+            formElem.setItem(COSName.PG, page);
+            formElem.setItem(COSName.K, objr);
+            if (tag.tooltip != null) {
+                formElem.setItem(COSName.ALT, tag.tooltip);
+            }
+            tag.formElem = formElem;
+        }
+        return WidgetReadingOrder.sort(Arrays.asList(tags), tag -> tag.rect, rotation).toArray(new WidgetTag[0]);
+    }
+
+    /** The /TU of the widget or of the nearest field above it, used as /Alt of the /Form element. */
+    private static COSString fieldTooltip(COSDictionary widget) {
+        COSDictionary node = widget;
+        // bounded walk, a malformed /Parent chain may be cyclic
+        for (int depth = 0; node != null && depth < 32; depth++) {
+            COSBase tu = node.getDictionaryObject(COSName.TU);
+            if (tu instanceof COSString) return (COSString) tu;
+
+            COSBase parent = node.getDictionaryObject(COSName.PARENT);
+            node = parent instanceof COSDictionary ? (COSDictionary) parent : null;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,180 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.apache.pdfbox.pdmodel.interactive.viewerpreferences.PDViewerPreferences;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Quick structural check of the PDF/UA requirements the fixers and generators deal with.
+ * <p>
+ * This is not a full PDF/UA validator such as PAC or veraPDF. It only covers the catalog entries
+ * (/MarkInfo, /Lang, XMP pdfuaid:part, /DisplayDocTitle), page /Tabs and the widget rule PAC reports as
+ * <i>"Widget" annotation not nested inside a "Form" structure element</i>: every widget needs a
+ * /StructParent whose ParentTree entry is a /Form element with an /OBJR pointing back at it.
+ */
+public final class PdfUaFormCheck {
+    private static final COSName WIDGET = COSName.getPDFName("Widget");
+    private static final COSName FORM = COSName.getPDFName("Form");
+    /** Stop collecting after this many problems, a broken 2,000-page form would produce thousands. */
+    private static final int MAX_PROBLEMS = 20;
+
+    private PdfUaFormCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (String src : args.length > 0 ? args : new String[] {"output_fixed_3.pdf"}) {
+            try (RandomAccessRead rar = new RandomAccessReadBufferedFile(Path.of(src))) {
+                PDFParser parser = new PDFParser(rar);
+                try (PDDocument doc = parser.parse()) {
+                    List<String> problems = check(doc);
+                    System.out.println((problems.isEmpty() ? "✅ " : "❌ ") + src);
+                    problems.forEach(p -> System.out.println("   " + p));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the problems found, empty if the document passes
+     */
+    public static List<String> check(PDDocument doc) throws IOException {
+        List<String> problems = new ArrayList<>();
+        PDDocumentCatalog catalog = doc.getDocumentCatalog();
+
+        if (catalog.getMarkInfo() == null || !catalog.getMarkInfo().isMarked()) {
+            problems.add("/MarkInfo /Marked is not true");
+        }
+        if (catalog.getLanguage() == null) {
+            problems.add("catalog has no /Lang");
+        }
+        PDViewerPreferences prefs = catalog.getViewerPreferences();
+        if (prefs == null || !prefs.displayDocTitle()) {
+            problems.add("/ViewerPreferences /DisplayDocTitle is not true");
+        }
+        PDMetadata metadata = catalog.getMetadata();
+        if (metadata == null) {
+            problems.add("no XMP metadata stream");
+        } else {
+            try (InputStream in = metadata.exportXMPMetadata()) {
+                if (!new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("pdfuaid:part")) {
+                    problems.add("XMP metadata has no pdfuaid:part");
+                }
+            }
+        }
+
+        COSDictionary structTreeRoot = catalog.getCOSObject().getCOSDictionary(COSName.STRUCT_TREE_ROOT);
+        if (structTreeRoot == null) {
+            problems.add("no /StructTreeRoot");
+        }
+        Map<Integer, COSBase> parentTree = parentTree(structTreeRoot);
+
+        int pageNumber = 0;
+        for (PDPage page : doc.getPages()) {
+            pageNumber++;
+            COSArray annots = page.getCOSObject().getCOSArray(COSName.ANNOTS);
+            if (annots == null) continue;
+            if (annots.size() > 0 && !COSName.S.equals(page.getCOSObject().getCOSName(WidgetReadingOrder.TABS))) {
+                problems.add("page " + pageNumber + ": /Tabs is not /S");
+            }
+
+            for (int i = 0; i < annots.size() && problems.size() < MAX_PROBLEMS; i++) {
+                COSBase annot = annots.getObject(i);
+                if (!(annot instanceof COSDictionary)) continue;
+                COSDictionary widget = (COSDictionary) annot;
+                if (!WIDGET.equals(widget.getCOSName(COSName.SUBTYPE))) continue;
+
+                String where = "page " + pageNumber + ", widget " + (i + 1) + ": ";
+                int structParent = widget.getInt(COSName.STRUCT_PARENT);
+                if (structParent < 0) {
+                    problems.add(where + "no /StructParent");
+                    continue;
+                }
+                COSBase value = parentTree.get(structParent);
+                if (value instanceof COSObject) value = ((COSObject) value).getObject();
+                if (!(value instanceof COSDictionary) || !FORM.equals(((COSDictionary) value).getCOSName(COSName.S))) {
+                    problems.add(where + "ParentTree entry " + structParent + " is not a /Form structure element");
+                } else if (!referencesWidget(((COSDictionary) value).getDictionaryObject(COSName.K), widget)) {
+                    problems.add(where + "/Form element has no /OBJR for this widget");
+                }
+            }
+        }
+        return problems;
+    }
+
+    /** The ParentTree of {@code structTreeRoot} as key to value, empty if there is none. */
+    static Map<Integer, COSBase> parentTree(COSDictionary structTreeRoot) {
+        Map<Integer, COSBase> parentTree = new HashMap<>();
+        if (structTreeRoot != null) collectNumbers(structTreeRoot.getCOSDictionary(COSName.PARENT_TREE), parentTree, 0);
+        return parentTree;
+    }
+
+    /**
+     * Whether the widget's /StructParent is a key whose ParentTree entry is a /Form element with an
+     * /OBJR pointing back at the widget, the rule {@link #check} applies.
+     */
+    static boolean isTagged(COSDictionary widget, Map<Integer, COSBase> parentTree) {
+        int structParent = widget.getInt(COSName.STRUCT_PARENT);
+        if (structParent < 0) return false;
+
+        COSBase value = parentTree.get(structParent);
+        if (value instanceof COSObject) value = ((COSObject) value).getObject();
+        return value instanceof COSDictionary
+                && FORM.equals(((COSDictionary) value).getCOSName(COSName.S))
+                && referencesWidget(((COSDictionary) value).getDictionaryObject(COSName.K), widget);
+    }
+
+    /** Flattens a number tree, /Kids and /Nums, into {@code out}. */
+    private static void collectNumbers(COSDictionary node, Map<Integer, COSBase> out, int depth) {
+        if (node == null || depth > 32) return;
+
+        COSArray nums = node.getCOSArray(COSName.NUMS);
+        if (nums != null) {
+            for (int i = 0; i + 1 < nums.size(); i += 2) {
+                COSBase key = nums.getObject(i);
+                if (key instanceof COSInteger) {
+                    out.put(((COSInteger) key).intValue(), nums.get(i + 1));
+                }
+            }
+        }
+        COSArray kids = node.getCOSArray(COSName.KIDS);
+        if (kids != null) {
+            for (int i = 0; i < kids.size(); i++) {
+                COSBase kid = kids.getObject(i);
+                if (kid instanceof COSDictionary) collectNumbers((COSDictionary) kid, out, depth + 1);
+            }
+        }
+    }
+
+    private static boolean referencesWidget(COSBase kids, COSDictionary widget) {
+        if (kids instanceof COSArray) {
+            COSArray array = (COSArray) kids;
+            for (int i = 0; i < array.size(); i++) {
+                if (referencesWidget(array.getObject(i), widget)) return true;
+            }
+            return false;
+        }
+        return kids instanceof COSDictionary
+                && COSName.OBJR.equals(((COSDictionary) kids).getCOSName(COSName.TYPE))
+                && ((COSDictionary) kids).getDictionaryObject(COSName.OBJ) == widget;
+    }
+}
@@ -0,0 +1,491 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.apache.pdfbox.pdmodel.interactive.viewerpreferences.PDViewerPreferences;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the PDF/UA XMP metadata stream (pdfuaid:part, dc:title, ...) of a document.
+ * <p>
+ * The packet is not built as an XMP DOM: every fixed part of it is encoded to UTF-8 once, when
+ * the class is loaded, and the per-document values are XML-escaped straight into a reusable
+ * per-thread byte buffer between those fragments.
+ * <p>
+ * Existing metadata is merged: values already present in the XMP stream or in the document
+ * information dictionary are kept, and every other property of the old packet (dc:format, xmpMM
+ * identifiers and history, pdfaid, extension schemas, ...) is copied over unchanged, together
+ * with the namespace declarations it relies on. The standard namespace prefixes are expected when
+ * reading an existing packet.
+ */
+public final class PdfUaXmp {
+    /** Properties written by this class, in packet order. */
+    enum Field {
+        TITLE("dc:title", "rdf:Alt"),
+        CREATOR("dc:creator", "rdf:Seq"),
+        DESCRIPTION("dc:description", "rdf:Alt"),
+        KEYWORDS("pdf:Keywords", null),
+        PRODUCER("pdf:Producer", null),
+        CREATOR_TOOL("xmp:CreatorTool", null),
+        CREATE_DATE("xmp:CreateDate", null),
+        MODIFY_DATE("xmp:ModifyDate", null),
+        METADATA_DATE("xmp:MetadataDate", null);
+
+        final String qName;
+        final byte[] open;
+        final byte[] close;
+
+        Field(String qName, String container) {
+            this.qName = qName;
+            if (container == null) {
+                open = utf8("<" + qName + ">");
+                close = utf8("</" + qName + ">\n");
+            } else {
+                String li = "rdf:Alt".equals(container) ? "<rdf:li xml:lang=\"x-default\">" : "<rdf:li>";
+                open = utf8("<" + qName + "><" + container + ">" + li);
+                close = utf8("</rdf:li></" + container + "></" + qName + ">\n");
+            }
+        }
+
+        private static final Map<String, Field> BY_NAME = new HashMap<>();
+
+        static {
+            for (Field field : values()) {
+                BY_NAME.put(field.qName, field);
+            }
+        }
+
+        /** @return the field written as {@code qName}, null if it is not one of ours */
+        static Field of(String qName) {
+            return BY_NAME.get(qName);
+        }
+    }
+
+    private static final byte[] HEAD = utf8("<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n"
+            + "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n"
+            + "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+            + "<rdf:Description rdf:about=\"\""
+            + " xmlns:pdfuaid=\"http://www.aiim.org/pdfua/ns/id/\""
+            + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+            + " xmlns:xmp=\"http://ns.adobe.com/xap/1.0/\""
+            + " xmlns:pdf=\"http://ns.adobe.com/pdf/1.3/\">\n"
+            + "<pdfuaid:part>1</pdfuaid:part>\n");
+    private static final byte[] END_DESCRIPTION = utf8("</rdf:Description>\n");
+    private static final byte[] TAIL = utf8("</rdf:RDF>\n</x:xmpmeta>\n");
+    /** Whitespace so that the packet can be edited in place, as recommended by the XMP spec. */
+    private static final byte[] PADDING;
+    private static final byte[] TRAILER = utf8("<?xpacket end=\"w\"?>");
+
+    static {
+        byte[] line = new byte[100];
+        Arrays.fill(line, (byte) ' ');
+        line[line.length - 1] = '\n';
+        PADDING = new byte[line.length * 20];
+        for (int i = 0; i < 20; i++) {
+            System.arraycopy(line, 0, PADDING, i * line.length, line.length);
+        }
+    }
+
+    /** Written by the template itself, dropped from the old packet. */
+    private static final String PDFUAID_PART = "pdfuaid:part";
+    private static final String DESCRIPTION = "<rdf:Description";
+    private static final String END_DESCRIPTION_TAG = "</rdf:Description>";
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w.:-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+    private static final Pattern LIST_ITEM = Pattern.compile("<rdf:li(\\s[^>]*)?>(.*?)</rdf:li>", Pattern.DOTALL);
+    private static final Pattern X_DEFAULT = Pattern.compile("xml:lang\\s*=\\s*[\"']x-default[\"']");
+    private static final Pattern ENTITY = Pattern.compile("&(?:#(\\d+)|#x([0-9a-fA-F]+)|(amp|lt|gt|quot|apos));");
+
+    private static final String PRODUCER = "Apache PDFBox";
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private PdfUaXmp() {
+    }
+
+    /**
+     * Writes the XMP metadata stream of {@code doc} and keeps the document information dictionary
+     * consistent with it. Also sets /DisplayDocTitle, which PDF/UA requires together with dc:title.
+     *
+     * @param defaultTitle the title to use when neither the XMP nor /Info has one
+     */
+    public static void apply(PDDocument doc, String defaultTitle) throws IOException {
+        PDDocumentCatalog catalog = doc.getDocumentCatalog();
+        PDDocumentInformation info = doc.getDocumentInformation();
+
+        // -- Step 1: Merge values, existing XMP > information dictionary > defaults
+        Map<Field, String> values = new EnumMap<>(Field.class);
+        values.put(Field.TITLE, info.getTitle());
+        values.put(Field.CREATOR, info.getAuthor());
+        values.put(Field.DESCRIPTION, info.getSubject());
+        values.put(Field.KEYWORDS, info.getKeywords());
+        values.put(Field.PRODUCER, info.getProducer());
+        values.put(Field.CREATOR_TOOL, info.getCreator());
+        values.put(Field.CREATE_DATE, format(info.getCreationDate()));
+
+        String preserved = "";
+        Set<Field> keptVerbatim = EnumSet.noneOf(Field.class);
+        PDMetadata existing = catalog.getMetadata();
+        if (existing != null) {
+            String xmp;
+            try (InputStream in = existing.exportXMPMetadata()) {
+                xmp = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            preserved = readExisting(xmp, values, keptVerbatim);
+        }
+
+        String now = OffsetDateTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+        values.putIfAbsent(Field.TITLE, defaultTitle);
+        if (values.get(Field.TITLE) == null) throw new IllegalArgumentException("PDF/UA requires a document title");
+        values.putIfAbsent(Field.PRODUCER, PRODUCER);
+        values.putIfAbsent(Field.CREATE_DATE, now);
+        values.put(Field.MODIFY_DATE, now);
+        values.put(Field.METADATA_DATE, now);
+
+        // -- Step 2: Fill the template and write the metadata stream
+        Buffer buffer = BUFFER.get();
+        buffer.size = 0;
+        buffer.write(HEAD);
+        for (Map.Entry<Field, String> entry : values.entrySet()) {
+            if (entry.getValue() == null || keptVerbatim.contains(entry.getKey())) continue;
+            buffer.write(entry.getKey().open);
+            buffer.writeEscaped(entry.getValue());
+            buffer.write(entry.getKey().close);
+        }
+        buffer.write(END_DESCRIPTION);
+        buffer.writeRaw(preserved);
+        buffer.write(TAIL);
+        buffer.write(PADDING);
+        buffer.write(TRAILER);
+
+        PDMetadata metadata = new PDMetadata(doc);
+        try (OutputStream out = metadata.createOutputStream()) {
+            out.write(buffer.bytes, 0, buffer.size);
+        }
+        catalog.setMetadata(metadata);
+        if (buffer.bytes.length > MAX_RETAINED_BUFFER) BUFFER.remove();
+
+        // -- Step 3: Keep /Info in sync and show the title instead of the file name
+        info.setTitle(values.get(Field.TITLE));
+        info.setAuthor(values.get(Field.CREATOR));
+        info.setSubject(values.get(Field.DESCRIPTION));
+        info.setKeywords(values.get(Field.KEYWORDS));
+        info.setProducer(values.get(Field.PRODUCER));
+        info.setCreator(values.get(Field.CREATOR_TOOL));
+        info.setCreationDate(parse(values.get(Field.CREATE_DATE)));
+        info.setModificationDate(parse(now));
+
+        PDViewerPreferences prefs = catalog.getViewerPreferences();
+        if (prefs == null) {
+            prefs = new PDViewerPreferences(new COSDictionary());
+            catalog.setViewerPreferences(prefs);
+        }
+        prefs.setDisplayDocTitle(true);
+    }
+
+    /**
+     * Moves the known properties found in {@code xmp} into {@code values} and returns the
+     * rdf:Description blocks with everything else, which must be carried over unchanged.
+     * A known property with several list items (two creators, titles in several languages) stays
+     * in those blocks as it is and is added to {@code keptVerbatim}; its value in {@code values} is
+     * then the x-default alternative, or all items joined with "; " for the /Info entry.
+     */
+    static String readExisting(String xmp, Map<Field, String> values, Set<Field> keptVerbatim) {
+        int rdf = xmp.indexOf("<rdf:RDF");
+        int rdfEnd = rdf < 0 ? -1 : xmp.indexOf('>', rdf);
+        if (rdfEnd < 0) return "";
+
+        // prefixes declared on x:xmpmeta or rdf:RDF are not in scope once a block is moved
+        Map<String, String> outer = new LinkedHashMap<>();
+        int meta = xmp.lastIndexOf("<x:xmpmeta", rdf);
+        if (meta >= 0) declarations(xmp.substring(meta, xmp.indexOf('>', meta)), outer);
+        declarations(xmp.substring(rdf, rdfEnd), outer);
+        outer.remove("xmlns:x");
+        outer.remove("xmlns:rdf");
+
+        StringBuilder preserved = new StringBuilder();
+        for (int[] child : childElements(xmp, rdfEnd + 1)) {
+            if (xmp.startsWith(DESCRIPTION, child[0])) {
+                preserved.append(unknownProperties(xmp.substring(child[0], child[1]), outer, values, keptVerbatim));
+            }
+        }
+        return preserved.toString();
+    }
+
+    /**
+     * Moves the known properties of one rdf:Description into {@code values}.
+     *
+     * @return the block with the remaining properties, its own and the outer namespace
+     * declarations, or an empty string if no property is left
+     */
+    private static String unknownProperties(String description, Map<String, String> outer, Map<Field, String> values,
+                                            Set<Field> keptVerbatim) {
+        int startEnd = description.indexOf('>');
+        boolean empty = description.charAt(startEnd - 1) == '/';
+        Map<String, String> missing = new LinkedHashMap<>(outer);
+        StringBuilder kept = new StringBuilder(description.length()).append(DESCRIPTION);
+        boolean hasProperties = false;
+
+        Matcher attribute = ATTRIBUTE.matcher(description.substring(DESCRIPTION.length(), empty ? startEnd - 1 : startEnd));
+        while (attribute.find()) {
+            String name = attribute.group(1);
+            Field field = Field.of(name);
+            if (field != null) {
+                if (!keptVerbatim.contains(field)) {
+                    putValue(values, field, attribute.group(2) != null ? attribute.group(2) : attribute.group(3));
+                }
+                continue;
+            }
+            if (PDFUAID_PART.equals(name)) continue;
+
+            missing.remove(name);
+            hasProperties |= !name.startsWith("xmlns:") && !"rdf:about".equals(name);
+            kept.append(' ').append(attribute.group());
+        }
+        missing.values().forEach(declaration -> kept.append(' ').append(declaration));
+
+        StringBuilder children = new StringBuilder();
+        if (!empty) {
+            int bodyEnd = description.lastIndexOf(END_DESCRIPTION_TAG);
+            for (int[] child : childElements(description.substring(0, bodyEnd), startEnd + 1)) {
+                String element = description.substring(child[0], child[1]);
+                int nameEnd = 1;
+                while (nameEnd < element.length() && "/> \t\r\n".indexOf(element.charAt(nameEnd)) < 0) nameEnd++;
+                String name = element.substring(1, nameEnd);
+
+                Field field = Field.of(name);
+                if (field != null) {
+                    if (keptVerbatim.contains(field)) continue;
+                    int open = element.indexOf('>');
+                    if (element.charAt(open - 1) == '/') continue;
+
+                    String content = element.substring(open + 1, element.lastIndexOf("</"));
+                    if (listItems(content).size() > 1) {
+                        children.append(element).append('\n');
+                        keptVerbatim.add(field);
+                    }
+                    putValue(values, field, content);
+                } else if (!PDFUAID_PART.equals(name)) {
+                    children.append(element).append('\n');
+                }
+            }
+        }
+        if (!hasProperties && children.length() == 0) return "";
+
+        return children.length() == 0
+                ? kept.append("/>\n").toString()
+                : kept.append(">\n").append(children).append(END_DESCRIPTION_TAG).append('\n').toString();
+    }
+
+    /**
+     * Stores a property value: plain text as it is, the x-default (else the first) alternative of an
+     * rdf:Alt, or the items of an rdf:Seq or rdf:Bag joined with "; ".
+     */
+    private static void putValue(Map<Field, String> values, Field field, String content) {
+        List<String[]> items = listItems(content);
+        String value;
+        if (items.isEmpty()) {
+            value = unescape(content.trim());
+        } else if (content.contains("<rdf:Alt")) {
+            value = items.get(0)[1];
+            for (String[] item : items) {
+                if (X_DEFAULT.matcher(item[0]).find()) value = item[1];
+            }
+        } else {
+            StringBuilder joined = new StringBuilder();
+            for (String[] item : items) {
+                if (joined.length() > 0) joined.append("; ");
+                joined.append(item[1]);
+            }
+            value = joined.toString();
+        }
+        if (!value.isEmpty()) values.put(field, value);
+    }
+
+    /** The rdf:li items of a container as {attributes, unescaped text}. */
+    private static List<String[]> listItems(String content) {
+        List<String[]> items = new ArrayList<>();
+        Matcher li = LIST_ITEM.matcher(content);
+        while (li.find()) {
+            items.add(new String[] {li.group(1) == null ? "" : li.group(1), unescape(li.group(2).trim())});
+        }
+        return items;
+    }
+
+    /** Adds the {@code xmlns:} attributes of {@code startTag} to {@code out}, name to attribute text. */
+    private static void declarations(String startTag, Map<String, String> out) {
+        Matcher attribute = ATTRIBUTE.matcher(startTag);
+        while (attribute.find()) {
+            if (attribute.group(1).startsWith("xmlns:")) out.put(attribute.group(1), attribute.group());
+        }
+    }
+
+    /**
+     * Finds the elements that start at nesting depth 0 after {@code from}, stopping at the end tag
+     * of their parent, and returns their start and end offsets. Comments, CDATA sections and
+     * processing instructions are skipped.
+     */
+    private static List<int[]> childElements(String xml, int from) {
+        List<int[]> children = new ArrayList<>();
+        int depth = 0;
+        int start = -1;
+        int i = xml.indexOf('<', from);
+        while (i >= 0) {
+            String terminator = xml.startsWith("<!--", i) ? "-->"
+                    : xml.startsWith("<![CDATA[", i) ? "]]>"
+                    : xml.startsWith("<?", i) || xml.startsWith("<!", i) ? ">"
+                    : null;
+            int end = xml.indexOf(terminator != null ? terminator : ">", i);
+            if (end < 0) break;
+
+            if (terminator == null) {
+                if (xml.charAt(i + 1) == '/') {
+                    if (depth == 0) break;
+                    if (--depth == 0) children.add(new int[] {start, end + 1});
+                } else {
+                    if (depth == 0) start = i;
+                    if (xml.charAt(end - 1) != '/') {
+                        depth++;
+                    } else if (depth == 0) {
+                        children.add(new int[] {start, end + 1});
+                    }
+                }
+            }
+            i = xml.indexOf('<', end + (terminator != null ? terminator.length() : 1));
+        }
+        return children;
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') < 0) return text;
+
+        Matcher m = ENTITY.matcher(text);
+        StringBuilder sb = new StringBuilder(text.length());
+        while (m.find()) {
+            String replacement;
+            if (m.group(1) != null) {
+                replacement = new String(Character.toChars(Integer.parseInt(m.group(1))));
+            } else if (m.group(2) != null) {
+                replacement = new String(Character.toChars(Integer.parseInt(m.group(2), 16)));
+            } else {
+                switch (m.group(3)) {
+                    case "amp": replacement = "&"; break;
+                    case "lt": replacement = "<"; break;
+                    case "gt": replacement = ">"; break;
+                    case "quot": replacement = "\""; break;
+                    default: replacement = "'"; break;
+                }
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static String format(Calendar calendar) {
+        if (calendar == null) return null;
+        return OffsetDateTime.ofInstant(calendar.toInstant(), calendar.getTimeZone().toZoneId())
+                .truncatedTo(ChronoUnit.SECONDS)
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+    }
+
+    private static Calendar parse(String xmpDate) {
+        try {
+            return GregorianCalendar.from(OffsetDateTime.parse(xmpDate).toZonedDateTime());
+        } catch (RuntimeException e) {
+            return null; // XMP also allows partial dates, which /Info cannot hold
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Growable byte array, reused by every packet written on the same thread. */
+    private static final class Buffer {
+        byte[] bytes = new byte[8192];
+        int size;
+
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        void writeRaw(String s) {
+            if (!s.isEmpty()) write(utf8(s));
+        }
+
+        /** UTF-8 encodes {@code s} with the five XML special characters escaped. */
+        void writeEscaped(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '&': write(AMP); continue;
+                    case '<': write(LT); continue;
+                    case '>': write(GT); continue;
+                    case '"': write(QUOT); continue;
+                    case '\'': write(APOS); continue;
+                    default: break;
+                }
+                ensure(4);
+                if (c < 0x20 && c != '\t' && c != '\n' && c != '\r') {
+                    bytes[size++] = ' '; // control characters are not allowed in XML 1.0
+                } else if (c < 0x80) {
+                    bytes[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[size++] = (byte) (0xC0 | (c >> 6));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    bytes[size++] = (byte) (0xF0 | (cp >> 18));
+                    bytes[size++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[size++] = '?'; // unpaired surrogate, not representable in XML
+                } else {
+                    bytes[size++] = (byte) (0xE0 | (c >> 12));
+                    bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        private static final byte[] AMP = utf8("&amp;");
+        private static final byte[] LT = utf8("&lt;");
+        private static final byte[] GT = utf8("&gt;");
+        private static final byte[] QUOT = utf8("&quot;");
+        private static final byte[] APOS = utf8("&apos;");
+    }
+}
@@ -0,0 +1,337 @@
+package example.pdfbox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.COSObjectable;
+import org.apache.pdfbox.pdmodel.common.PDNumberTreeNode;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDObjectReference;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.StandardStructureTypes;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDNonTerminalField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+
+import static org.apache.pdfbox.pdmodel.font.Standard14Fonts.FontName.HELVETICA;
+
+/**
+ * Generates synthetic signature-form documents for load testing, built the same way as
+ * {@link TaggedSignatureFieldPDFBox3_Manual}.
+ * <p>
+ * Usage: {@code SyntheticFormCorpus <outDir> <pages> <widgetsPerPage> <nestingDepth> <UNTAGGED|PARTIAL|TAGGED> [count]}
+ */
+public class SyntheticFormCorpus
+{
+    /** How much of the structure tree already exists in a generated document. */
+    public enum TagState
+    {
+        /** No structure tree at all, like {@link SignatureFieldExample}. */
+        UNTAGGED,
+        /** Structure tree present, but only the first half of the widgets are linked into it. */
+        PARTIAL,
+        /** Every widget is linked to a /Form element. */
+        TAGGED
+    }
+
+    /** Shape of the generated documents. */
+    public static final class Spec
+    {
+        final int pages;
+        final int widgetsPerPage;
+        final int nestingDepth;
+        final TagState tagState;
+
+        /**
+         * @param nestingDepth number of non-terminal fields above each signature field, 0 for top-level fields
+         */
+        public Spec(int pages, int widgetsPerPage, int nestingDepth, TagState tagState)
+        {
+            if (pages < 1 || widgetsPerPage < 0 || nestingDepth < 0)
+            {
+                throw new IllegalArgumentException("pages must be > 0, widgets and depth >= 0");
+            }
+            if (widgetsPerPage > maxSlots(PDRectangle.LETTER))
+            {
+                throw new IllegalArgumentException("at most " + maxSlots(PDRectangle.LETTER)
+                        + " widgets fit on a page, got " + widgetsPerPage);
+            }
+            this.pages = pages;
+            this.widgetsPerPage = widgetsPerPage;
+            this.nestingDepth = nestingDepth;
+            this.tagState = tagState;
+        }
+
+        String fileName(int index)
+        {
+            return String.format(Locale.ROOT, "form-p%d-w%d-d%d-%s-%03d.pdf",
+                    pages, widgetsPerPage, nestingDepth, tagState.name().toLowerCase(Locale.ROOT), index);
+        }
+
+        @Override
+        public String toString()
+        {
+            return pages + " pages x " + widgetsPerPage + " widgets, depth " + nestingDepth + ", " + tagState;
+        }
+    }
+
+    private static final float MARGIN = 50;
+    private static final int COLUMNS = 2;
+    /** Smallest grid cell, which still leaves a 4 x 4 widget inside the 2pt gutter. */
+    private static final float MIN_CELL = 8;
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 5)
+        {
+            System.err.println("Usage: SyntheticFormCorpus <outDir> <pages> <widgetsPerPage> <nestingDepth> "
+                    + "<UNTAGGED|PARTIAL|TAGGED> [count]");
+            System.exit(1);
+        }
+        Spec spec = new Spec(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                TagState.valueOf(args[4].toUpperCase(Locale.ROOT)));
+        int count = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+
+        List<Path> files = generate(Path.of(args[0]), spec, count);
+        System.out.println("Generated " + files.size() + " document(s) (" + spec + ") in " + args[0]);
+    }
+
+    /**
+     * Writes {@code count} documents of the given shape to {@code outDir}. Each document uses its
+     * own seed, so the widget creation order differs between documents but is reproducible.
+     */
+    public static List<Path> generate(Path outDir, Spec spec, int count) throws IOException
+    {
+        Files.createDirectories(outDir);
+        List<Path> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            Path file = outDir.resolve(spec.fileName(i));
+            try (PDDocument doc = create(spec, new Random(i)))
+            {
+                doc.save(file.toFile());
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Builds one document. Widgets are laid out in a grid, but created in a shuffled order so that
+     * the AcroForm and /Annots order does not match the reading order. Tagged widgets are linked
+     * into the structure tree in reading order.
+     */
+    public static PDDocument create(Spec spec, Random random) throws IOException
+    {
+        PDDocument doc = new PDDocument();
+        PDDocumentCatalog catalog = doc.getDocumentCatalog();
+
+        PDStructureTreeRoot structureTreeRoot = null;
+        PDStructureElement docElement = null;
+        if (spec.tagState != TagState.UNTAGGED)
+        {
+            // 1) Enable tagging
+            PDMarkInfo markInfo = new PDMarkInfo();
+            markInfo.setMarked(true);
+            catalog.setMarkInfo(markInfo);
+            catalog.setLanguage("en-US");
+
+            // 2) Create the Structure Tree Root and the /Document element
+            structureTreeRoot = new PDStructureTreeRoot();
+            catalog.setStructureTreeRoot(structureTreeRoot);
+            docElement = new PDStructureElement(StandardStructureTypes.DOCUMENT, structureTreeRoot);
+            structureTreeRoot.appendKid(docElement);
+        }
+
+        PDAcroForm acroForm = new PDAcroForm(doc);
+        catalog.setAcroForm(acroForm);
+        // filled at COS level, going through getFields() for every field would be quadratic
+        COSArray topLevel = new COSArray();
+        acroForm.getCOSObject().setItem(COSName.FIELDS, topLevel);
+
+        PDType1Font font = new PDType1Font(HELVETICA);
+        int totalWidgets = spec.pages * spec.widgetsPerPage;
+        Map<Integer, COSObjectable> parentTreeNumbers = new HashMap<>();
+        int widgetIndex = 0;
+
+        for (int p = 0; p < spec.pages; p++)
+        {
+            // 3) Add a page with some text
+            PDPage page = new PDPage();
+            doc.addPage(page);
+            try (PDPageContentStream cs = new PDPageContentStream(doc, page))
+            {
+                cs.beginText();
+                cs.setFont(font, 12);
+                cs.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN);
+                cs.showText("Synthetic form page " + (p + 1) + " of " + spec.pages);
+                cs.endText();
+            }
+
+            // 4) Chain of non-terminal fields the signature fields of this page hang off
+            PDNonTerminalField group = null;
+            for (int d = 0; d < spec.nestingDepth; d++)
+            {
+                PDNonTerminalField child = new PDNonTerminalField(acroForm);
+                child.setPartialName(d == 0 ? "page" + (p + 1) : "group" + d);
+                if (group == null)
+                {
+                    topLevel.add(child.getCOSObject());
+                }
+                else
+                {
+                    addChild(group, child);
+                }
+                group = child;
+            }
+
+            // 5) Create the signature fields in shuffled grid order
+            List<Integer> slots = new ArrayList<>(spec.widgetsPerPage);
+            for (int w = 0; w < spec.widgetsPerPage; w++)
+            {
+                slots.add(w);
+            }
+            Collections.shuffle(slots, random);
+
+            COSArray annotations = new COSArray();
+            page.getCOSObject().setItem(COSName.ANNOTS, annotations);
+            List<PDAnnotationWidget> pageWidgets = new ArrayList<>(spec.widgetsPerPage);
+            for (int slot : slots)
+            {
+                PDSignatureField signatureField = new PDSignatureField(acroForm);
+                signatureField.setPartialName("Signature_" + (p + 1) + "_" + (slot + 1));
+                signatureField.setAlternateFieldName("Signature " + (slot + 1) + " on page " + (p + 1));
+
+                PDAnnotationWidget widget = signatureField.getWidgets().get(0);
+                widget.setRectangle(slotRectangle(page.getMediaBox(), slot, spec.widgetsPerPage));
+                widget.setPage(page);
+                annotations.add(widget);
+                pageWidgets.add(widget);
+
+                if (group == null)
+                {
+                    topLevel.add(signatureField.getCOSObject());
+                }
+                else
+                {
+                    addChild(group, signatureField);
+                }
+            }
+
+            // 6) Link the widgets into the structure tree in reading order
+            if (structureTreeRoot == null)
+            {
+                continue;
+            }
+            if (!pageWidgets.isEmpty())
+            {
+                page.getCOSObject().setItem(WidgetReadingOrder.TABS, COSName.S);
+            }
+            for (PDAnnotationWidget widget : WidgetReadingOrder.sort(pageWidgets,
+                    w -> WidgetReadingOrder.rectOf(w.getCOSObject())))
+            {
+                boolean tagged = spec.tagState == TagState.TAGGED
+                        || (spec.tagState == TagState.PARTIAL && widgetIndex < totalWidgets / 2);
+                if (tagged)
+                {
+                    addAnnotationToStructTree(widget, page, docElement, parentTreeNumbers);
+                }
+                widgetIndex++;
+            }
+        }
+
+        if (structureTreeRoot != null)
+        {
+            PDNumberTreeNode parentTree = new PDNumberTreeNode(new COSDictionary(), null);
+            parentTree.setNumbers(parentTreeNumbers);
+            structureTreeRoot.setParentTree(parentTree);
+            structureTreeRoot.setParentTreeNextKey(parentTreeNumbers.size());
+        }
+        return doc;
+    }
+
+    private static void addChild(PDNonTerminalField parent, PDField child)
+    {
+        COSArray kids = parent.getCOSObject().getCOSArray(COSName.KIDS);
+        if (kids == null)
+        {
+            kids = new COSArray();
+            parent.getCOSObject().setItem(COSName.KIDS, kids);
+        }
+        kids.add(child.getCOSObject());
+        child.getCOSObject().setItem(COSName.PARENT, parent);
+    }
+
+    /**
+     * Grid cell {@code slot} of at least {@code COLUMNS} columns, rows filling the page from the top.
+     * Columns are added once the rows would get lower than {@link #MIN_CELL}.
+     */
+    private static PDRectangle slotRectangle(PDRectangle mediaBox, int slot, int slotCount)
+    {
+        int maxRows = maxRows(mediaBox);
+        int columns = Math.max(COLUMNS, (slotCount + maxRows - 1) / maxRows);
+        int rows = (slotCount + columns - 1) / columns;
+        float cellWidth = (mediaBox.getWidth() - 2 * MARGIN) / columns;
+        float cellHeight = (mediaBox.getHeight() - 3 * MARGIN) / rows;
+        float x = MARGIN + (slot % columns) * cellWidth;
+        float top = mediaBox.getHeight() - 2 * MARGIN - (slot / columns) * cellHeight;
+        return new PDRectangle(x + 2, top - cellHeight + 2, cellWidth - 4, cellHeight - 4);
+    }
+
+    private static int maxRows(PDRectangle mediaBox)
+    {
+        return (int) ((mediaBox.getHeight() - 3 * MARGIN) / MIN_CELL);
+    }
+
+    /** Number of grid cells of at least {@link #MIN_CELL} that fit on a page of this size. */
+    private static int maxSlots(PDRectangle mediaBox)
+    {
+        return maxRows(mediaBox) * (int) ((mediaBox.getWidth() - 2 * MARGIN) / MIN_CELL);
+    }
+
+    /**
+     * Same linkage as {@link TaggedSignatureFieldPDFBox3_Manual}, but with one /Form element per
+     * widget and the parent tree collected in a map that is written once at the end.
+     */
+    private static void addAnnotationToStructTree(
+            PDAnnotationWidget annotation,
+            PDPage page,
+            PDStructureElement docElement,
+            Map<Integer, COSObjectable> parentTreeNumbers)
+    {
+        int structParent = parentTreeNumbers.size();
+        annotation.getCOSObject().setInt(COSName.STRUCT_PARENT, structParent);
+
+        PDStructureElement formElement = new PDStructureElement(StandardStructureTypes.FORM, docElement);
+        formElement.setPage(page);
+        docElement.appendKid(formElement);
+
+        COSDictionary objrDict = new COSDictionary();
+        objrDict.setItem(COSName.TYPE, COSName.OBJR);
+        objrDict.setItem(COSName.PG, page);
+        objrDict.setItem(COSName.OBJ, annotation.getCOSObject());
+        formElement.appendKid(new PDObjectReference(objrDict));
+
+        parentTreeNumbers.put(structParent, formElement);
+    }
+}
@@ -0,0 +1,417 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Merges many tagged documents, e.g. the output of the signature generators, into one signing
+ * packet that stays PDF/UA-tagged.
+ * <ul>
+ *     <li>Pages are moved into the merged page tree as they are, so every /P, /Pg and /OBJR
+ *     reference into them stays valid without cloning.</li>
+ *     <li>Each source's top-level fields are put under a non-terminal field {@code doc<n>}, which
+ *     keeps fully-qualified names unique ({@code Signature1} becomes {@code doc2.Signature1}).</li>
+ *     <li>Each source's structure tree is grafted as a /Part under one shared /Document element.
+ *     Its StructParent/StructParents keys are shifted by the number of keys used by the sources
+ *     before it, and the merged ParentTree is built in one pass as a balanced number tree.</li>
+ *     <li>Widgets of a source that are not tagged yet are tagged with
+ *     {@link FixPdfUaStructureParallel#tagWidgets} first, keeping its existing structure tree. Its
+ *     metadata, /Lang and viewer preferences are not touched. A source with neither a structure
+ *     tree nor an AcroForm cannot be tagged and is rejected.</li>
+ * </ul>
+ * Outlines, named destinations and structure element IDs (/IDTree) are not merged.
+ * The source documents share their objects with the result and must stay open until it is saved.
+ * They must have been parsed from a file or stream: a document built in memory holds its pages and
+ * widgets as direct objects that refer to each other, which cannot be written into another
+ * document. Save such a document and parse it again before merging it.
+ */
+public class TaggedDocumentMerger {
+    /** Maximum number of entries per number tree node. */
+    static final int NUMBER_TREE_FANOUT = 64;
+
+    private static final COSName STRUCT_ELEM = COSName.getPDFName("StructElem");
+    private static final COSName DOCUMENT = COSName.getPDFName("Document");
+    private static final COSName PART = COSName.getPDFName("Part");
+    private static final COSName CLASS_MAP = COSName.getPDFName("ClassMap");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TaggedDocumentMerger <dest> <src> [<src>...]");
+            System.exit(1);
+        }
+        String dest = args[0];
+        new File(dest).delete();
+
+        List<PDDocument> sources = new ArrayList<>(args.length - 1);
+        try {
+            for (int i = 1; i < args.length; i++) {
+                sources.add(new PDFParser(new RandomAccessReadBufferedFile(Path.of(args[i]))).parse());
+            }
+            try (PDDocument merged = merge(sources, Path.of(dest).getFileName().toString())) {
+                merged.save(dest);
+                System.out.println("✅ " + sources.size() + " documents, " + merged.getNumberOfPages()
+                        + " pages merged into: " + dest);
+            }
+        } finally {
+            for (PDDocument source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Merges {@code sources}, in order, into a new document.
+     *
+     * @param title the title used when writing the XMP metadata of the result
+     * @throws IllegalArgumentException if a source was not parsed, or has neither a structure tree
+     *                                  nor an AcroForm
+     */
+    public static PDDocument merge(List<PDDocument> sources, String title) throws IOException {
+        PDDocument merged = new PDDocument();
+        PDDocumentCatalog catalog = merged.getDocumentCatalog();
+
+        // -- Step 1: Shared structure root, /Document element and AcroForm
+        COSDictionary structTreeRoot = new COSDictionary();
+        structTreeRoot.setItem(COSName.TYPE, COSName.STRUCT_TREE_ROOT);
+        COSDictionary roleMap = new COSDictionary();
+        COSDictionary classMap = new COSDictionary();
+
+        COSDictionary docElem = new COSDictionary();
+        docElem.setItem(COSName.TYPE, STRUCT_ELEM);
+        docElem.setItem(COSName.S, DOCUMENT);
+        docElem.setItem(COSName.P, structTreeRoot);
+        COSArray docKids = new COSArray();
+        docElem.setItem(COSName.K, docKids);
+
+        PDAcroForm acroForm = new PDAcroForm(merged);
+        COSDictionary formDict = acroForm.getCOSObject();
+        COSArray fields = new COSArray();
+        formDict.setItem(COSName.FIELDS, fields);
+        COSDictionary fonts = new COSDictionary();
+
+        String lang = null;
+        COSArray nums = new COSArray();
+        int offset = 0;
+
+        for (int s = 0; s < sources.size(); s++) {
+            PDDocument source = sources.get(s);
+            PDDocumentCatalog srcCatalog = source.getDocumentCatalog();
+            COSDictionary srcForm = srcCatalog.getCOSObject().getCOSDictionary(COSName.ACRO_FORM);
+            COSDictionary srcRoot = srcCatalog.getCOSObject().getCOSDictionary(COSName.STRUCT_TREE_ROOT);
+            if (source.getDocument().getXrefTable().isEmpty()) {
+                throw new IllegalArgumentException("Source " + (s + 1) + " was not parsed from a file;"
+                        + " save it and parse it again before merging");
+            }
+            if (srcForm != null) {
+                FixPdfUaStructureParallel.tagWidgets(source, ForkJoinPool.commonPool());
+                srcRoot = srcCatalog.getCOSObject().getCOSDictionary(COSName.STRUCT_TREE_ROOT);
+            } else if (srcRoot == null) {
+                throw new IllegalArgumentException("Source " + (s + 1) + " has neither a structure tree nor an AcroForm");
+            }
+            String srcLang = srcCatalog.getLanguage();
+            if (lang == null) lang = srcLang;
+
+            // -- Step 2: Move the pages and shift their keys
+            Set<COSBase> shifted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (PDPage page : source.getPages()) {
+                freezeInheritedAttributes(page);
+                if (offset > 0) shiftKeys(page, offset, shifted);
+                merged.addPage(page);
+            }
+
+            // -- Step 3: Fields under doc<n>, inheritable /DA kept on the wrapper
+            if (srcForm != null) {
+                COSArray srcFields = srcForm.getCOSArray(COSName.FIELDS);
+                if (srcFields != null && srcFields.size() > 0) {
+                    COSDictionary wrapper = new COSDictionary();
+                    wrapper.setItem(COSName.T, new COSString("doc" + (s + 1)));
+                    wrapper.setItem(COSName.KIDS, srcFields);
+                    COSBase da = srcForm.getDictionaryObject(COSName.DA);
+                    if (da != null) wrapper.setItem(COSName.DA, da);
+                    for (int i = 0; i < srcFields.size(); i++) {
+                        COSBase field = srcFields.getObject(i);
+                        if (field instanceof COSDictionary) ((COSDictionary) field).setItem(COSName.PARENT, wrapper);
+                    }
+                    fields.add(wrapper);
+                }
+                COSDictionary srcDr = srcForm.getCOSDictionary(COSName.DR);
+                mergeMissing(srcDr == null ? null : srcDr.getCOSDictionary(COSName.FONT), fonts);
+                int sigFlags = srcForm.getInt(COSName.SIG_FLAGS, 0);
+                if (sigFlags != 0) formDict.setInt(COSName.SIG_FLAGS, formDict.getInt(COSName.SIG_FLAGS, 0) | sigFlags);
+            }
+
+            // -- Step 4: Graft the structure tree as a /Part and append its ParentTree entries
+            if (srcRoot == null) continue;
+
+            docKids.add(graftAsPart(srcRoot, docElem, srcLang != null && !srcLang.equals(lang) ? srcLang : null));
+            mergeMissing(srcRoot.getCOSDictionary(COSName.ROLE_MAP), roleMap);
+            mergeMissing(srcRoot.getCOSDictionary(CLASS_MAP), classMap);
+
+            int keyCount = Math.max(0, srcRoot.getInt(COSName.PARENT_TREE_NEXT_KEY, 0));
+            keyCount = Math.max(keyCount, appendParentTree(srcRoot.getCOSDictionary(COSName.PARENT_TREE), offset, nums) + 1);
+            offset += keyCount;
+        }
+
+        // -- Step 5: Finish the structure tree and the catalog
+        structTreeRoot.setItem(COSName.K, docElem);
+        structTreeRoot.setItem(COSName.PARENT_TREE, buildNumberTree(nums));
+        structTreeRoot.setInt(COSName.PARENT_TREE_NEXT_KEY, offset);
+        if (roleMap.size() > 0) structTreeRoot.setItem(COSName.ROLE_MAP, roleMap);
+        if (classMap.size() > 0) structTreeRoot.setItem(CLASS_MAP, classMap);
+        catalog.getCOSObject().setItem(COSName.STRUCT_TREE_ROOT, structTreeRoot);
+
+        if (fonts.size() > 0) {
+            COSDictionary dr = new COSDictionary();
+            dr.setItem(COSName.FONT, fonts);
+            formDict.setItem(COSName.DR, dr);
+        }
+        catalog.setAcroForm(acroForm);
+
+        catalog.setLanguage(lang != null ? lang : "en-US");
+        PDMarkInfo markInfo = new PDMarkInfo();
+        markInfo.setMarked(true);
+        catalog.setMarkInfo(markInfo);
+        PdfUaXmp.apply(merged, title);
+        return merged;
+    }
+
+    /**
+     * Builds a balanced number tree from a flat /Nums array whose keys are ascending: leaves of up
+     * to {@link #NUMBER_TREE_FANOUT} pairs, then levels of up to that many kids, each with /Limits.
+     */
+    static COSDictionary buildNumberTree(COSArray nums) {
+        COSDictionary root = new COSDictionary();
+        int pairs = nums.size() / 2;
+        if (pairs <= NUMBER_TREE_FANOUT) {
+            root.setItem(COSName.NUMS, nums);
+            return root;
+        }
+
+        List<COSDictionary> level = new ArrayList<>((pairs + NUMBER_TREE_FANOUT - 1) / NUMBER_TREE_FANOUT);
+        for (int start = 0; start < pairs; start += NUMBER_TREE_FANOUT) {
+            int end = Math.min(pairs, start + NUMBER_TREE_FANOUT);
+            COSArray leafNums = new COSArray();
+            for (int i = 2 * start; i < 2 * end; i++) {
+                leafNums.add(nums.get(i));
+            }
+            COSDictionary leaf = new COSDictionary();
+            leaf.setItem(COSName.NUMS, leafNums);
+            leaf.setItem(COSName.LIMITS, limits(nums.get(2 * start), nums.get(2 * end - 2)));
+            level.add(leaf);
+        }
+
+        while (level.size() > NUMBER_TREE_FANOUT) {
+            List<COSDictionary> parents = new ArrayList<>((level.size() + NUMBER_TREE_FANOUT - 1) / NUMBER_TREE_FANOUT);
+            for (int start = 0; start < level.size(); start += NUMBER_TREE_FANOUT) {
+                int end = Math.min(level.size(), start + NUMBER_TREE_FANOUT);
+                COSArray kids = new COSArray();
+                for (int i = start; i < end; i++) {
+                    kids.add(level.get(i));
+                }
+                COSDictionary node = new COSDictionary();
+                node.setItem(COSName.KIDS, kids);
+                node.setItem(COSName.LIMITS, limits(
+                        level.get(start).getCOSArray(COSName.LIMITS).get(0),
+                        level.get(end - 1).getCOSArray(COSName.LIMITS).get(1)));
+                parents.add(node);
+            }
+            level = parents;
+        }
+
+        COSArray rootKids = new COSArray();
+        level.forEach(rootKids::add);
+        root.setItem(COSName.KIDS, rootKids);
+        return root;
+    }
+
+    private static COSArray limits(COSBase low, COSBase high) {
+        COSArray limits = new COSArray();
+        limits.add(low);
+        limits.add(high);
+        return limits;
+    }
+
+    /**
+     * Re-parents the kids of a source structure root under a /Part element of {@code docElem}.
+     * A single top-level /Document element is reused as that /Part.
+     */
+    private static COSDictionary graftAsPart(COSDictionary srcRoot, COSDictionary docElem, String lang) {
+        COSBase k = srcRoot.getDictionaryObject(COSName.K);
+        COSDictionary part;
+        if (k instanceof COSDictionary && DOCUMENT.equals(((COSDictionary) k).getCOSName(COSName.S))) {
+            part = (COSDictionary) k;
+            part.setItem(COSName.S, PART);
+        } else {
+            part = new COSDictionary();
+            part.setItem(COSName.TYPE, STRUCT_ELEM);
+            part.setItem(COSName.S, PART);
+            COSArray kids = new COSArray();
+            if (k instanceof COSArray) {
+                COSArray srcKids = (COSArray) k;
+                for (int i = 0; i < srcKids.size(); i++) {
+                    kids.add(srcKids.get(i));
+                    COSBase kid = srcKids.getObject(i);
+                    if (kid instanceof COSDictionary) ((COSDictionary) kid).setItem(COSName.P, part);
+                }
+            } else if (k instanceof COSDictionary) {
+                kids.add(k);
+                ((COSDictionary) k).setItem(COSName.P, part);
+            }
+            part.setItem(COSName.K, kids);
+        }
+        part.setItem(COSName.P, docElem);
+        if (lang != null) part.setString(COSName.LANG, lang);
+        return part;
+    }
+
+    /**
+     * Appends the entries of a source ParentTree to {@code nums} with their keys shifted by
+     * {@code offset}, keeping the keys ascending.
+     *
+     * @return the highest source key, -1 if there is none
+     */
+    static int appendParentTree(COSDictionary parentTree, int offset, COSArray nums) {
+        COSArray srcNums = new COSArray();
+        flattenNumberTree(parentTree, srcNums, 0);
+
+        boolean ascending = true;
+        int maxKey = -1;
+        for (int i = 0; i < srcNums.size(); i += 2) {
+            int key = ((COSInteger) srcNums.get(i)).intValue();
+            if (key <= maxKey) ascending = false;
+            maxKey = Math.max(maxKey, key);
+        }
+        List<Integer> order = new ArrayList<>(srcNums.size() / 2);
+        for (int i = 0; i < srcNums.size(); i += 2) {
+            order.add(i);
+        }
+        if (!ascending) {
+            // only for malformed trees, a valid number tree flattens in key order
+            order.sort((a, b) -> Integer.compare(((COSInteger) srcNums.get(a)).intValue(),
+                    ((COSInteger) srcNums.get(b)).intValue()));
+        }
+        for (int i : order) {
+            nums.add(COSInteger.get(((COSInteger) srcNums.get(i)).intValue() + (long) offset));
+            nums.add(srcNums.get(i + 1));
+        }
+        return maxKey;
+    }
+
+    /** Copies the key/value pairs of a number tree, /Kids and /Nums, into {@code out}. */
+    private static void flattenNumberTree(COSDictionary node, COSArray out, int depth) {
+        if (node == null || depth > 32) return;
+
+        COSArray nodeNums = node.getCOSArray(COSName.NUMS);
+        if (nodeNums != null) {
+            for (int i = 0; i + 1 < nodeNums.size(); i += 2) {
+                if (nodeNums.getObject(i) instanceof COSInteger) {
+                    out.add(nodeNums.getObject(i));
+                    out.add(nodeNums.get(i + 1));
+                }
+            }
+        }
+        COSArray kids = node.getCOSArray(COSName.KIDS);
+        if (kids != null) {
+            for (int i = 0; i < kids.size(); i++) {
+                COSBase kid = kids.getObject(i);
+                if (kid instanceof COSDictionary) flattenNumberTree((COSDictionary) kid, out, depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Shifts /StructParents of the page, /StructParent of its annotations and both keys of every
+     * form XObject reachable from the page resources or the annotation appearance streams,
+     * at any nesting depth. {@code shifted} makes sure shared objects are shifted once.
+     */
+    private static void shiftKeys(PDPage page, int offset, Set<COSBase> shifted) {
+        COSDictionary pageDict = page.getCOSObject();
+        shift(pageDict, COSName.STRUCT_PARENTS, offset);
+
+        COSArray annots = pageDict.getCOSArray(COSName.ANNOTS);
+        if (annots != null) {
+            for (int i = 0; i < annots.size(); i++) {
+                COSBase annot = annots.getObject(i);
+                if (!(annot instanceof COSDictionary) || !shifted.add(annot)) continue;
+
+                shift((COSDictionary) annot, COSName.STRUCT_PARENT, offset);
+                COSDictionary ap = ((COSDictionary) annot).getCOSDictionary(COSName.AP);
+                if (ap == null) continue;
+                for (COSName mode : new COSName[] {COSName.N, COSName.R, COSName.D}) {
+                    COSBase appearance = ap.getDictionaryObject(mode);
+                    if (appearance instanceof COSStream) {
+                        shiftXObject((COSStream) appearance, offset, shifted);
+                    } else if (appearance instanceof COSDictionary) {
+                        // appearance states, e.g. /On and /Off of a check box
+                        for (COSBase state : ((COSDictionary) appearance).getValues()) {
+                            if (state instanceof COSObject) state = ((COSObject) state).getObject();
+                            if (state instanceof COSStream) shiftXObject((COSStream) state, offset, shifted);
+                        }
+                    }
+                }
+            }
+        }
+        shiftXObjects(pageDict.getCOSDictionary(COSName.RESOURCES), offset, shifted);
+    }
+
+    private static void shiftXObjects(COSDictionary resources, int offset, Set<COSBase> shifted) {
+        COSDictionary xObjects = resources == null ? null : resources.getCOSDictionary(COSName.XOBJECT);
+        if (xObjects == null) return;
+        for (COSName name : xObjects.keySet()) {
+            COSBase xObject = xObjects.getDictionaryObject(name);
+            if (xObject instanceof COSStream) shiftXObject((COSStream) xObject, offset, shifted);
+        }
+    }
+
+    private static void shiftXObject(COSStream xObject, int offset, Set<COSBase> shifted) {
+        if (!shifted.add(xObject)) return;
+        shift(xObject, COSName.STRUCT_PARENTS, offset);
+        shift(xObject, COSName.STRUCT_PARENT, offset);
+        shiftXObjects(xObject.getCOSDictionary(COSName.RESOURCES), offset, shifted);
+    }
+
+    private static void shift(COSDictionary dict, COSName key, int offset) {
+        int value = dict.getInt(key);
+        if (value >= 0) dict.setInt(key, value + offset);
+    }
+
+    /** Copies attributes inherited from the source page tree onto the page before it leaves it. */
+    private static void freezeInheritedAttributes(PDPage page) {
+        COSDictionary pageDict = page.getCOSObject();
+        if (!pageDict.containsKey(COSName.RESOURCES)) page.setResources(page.getResources());
+        if (!pageDict.containsKey(COSName.MEDIA_BOX)) page.setMediaBox(page.getMediaBox());
+        if (!pageDict.containsKey(COSName.CROP_BOX)) page.setCropBox(page.getCropBox());
+        if (!pageDict.containsKey(COSName.ROTATE)) page.setRotation(page.getRotation());
+    }
+
+    /** Adds the entries of {@code from} that {@code to} does not have yet; the first source wins. */
+    private static void mergeMissing(COSDictionary from, COSDictionary to) {
+        if (from == null) return;
+        for (COSName key : from.keySet()) {
+            if (!to.containsKey(key)) to.setItem(key, from.getItem(key));
+        }
+    }
+}
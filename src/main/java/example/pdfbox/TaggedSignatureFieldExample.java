@@ -82,6 +82,8 @@ public class TaggedSignatureFieldExample
 
             // Add the widget to the page's annotations
             page.getAnnotations().add(widget);
+            // Tab order = structure order (required by PDF/UA for pages with annotations)
+            page.getCOSObject().setItem(WidgetReadingOrder.TABS, COSName.S);
             // Add the field to the AcroForm
             acroForm.getFields().add(signatureField);
 
@@ -95,6 +97,9 @@ public class TaggedSignatureFieldExample
             // 10) Append the object reference under the /Form element
             formElement.appendKid(objRef);
 
+            // PDF/UA identification and title in the XMP metadata
+            PdfUaXmp.apply(doc, "Tagged signature field example");
+
             // 11) Save the document
             doc.save("~//Downloads/TaggedSignatureField.pdf");
             doc.save("TaggedSignatureField.pdf");
@@ -76,11 +76,16 @@ public class TaggedSignatureFieldPDFBox2 {
             widget.setPage(page);
 
             page.getAnnotations().add(widget);
+            // Tab order = structure order (required by PDF/UA for pages with annotations)
+            page.getCOSObject().setItem(WidgetReadingOrder.TABS, COSName.S);
             acroForm.getFields().add(signatureField);
 
             // 7) **Manually** link the annotation to the /Form structure element
             addAnnotationToStructTree(widget, formElement, structureTreeRoot);
 
+            // PDF/UA identification and title in the XMP metadata
+            PdfUaXmp.apply(doc, "Tagged signature field example");
+
             // 8) Save
             doc.save("~//Downloads/TaggedSignatureField3.pdf");
 
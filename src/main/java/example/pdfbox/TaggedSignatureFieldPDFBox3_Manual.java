@@ -78,11 +78,16 @@ public class TaggedSignatureFieldPDFBox3_Manual
             widget.setPage(page);
 
             page.getAnnotations().add(widget);
+            // Tab order = structure order (required by PDF/UA for pages with annotations)
+            page.getCOSObject().setItem(WidgetReadingOrder.TABS, COSName.S);
             acroForm.getFields().add(signatureField);
 
             // 7) The critical part: manually link the annotation into the structure.
             addAnnotationToStructTree(widget, formElement, structureTreeRoot);
 
+            // PDF/UA identification and title in the XMP metadata
+            PdfUaXmp.apply(doc, "Tagged signature field example");
+
             // 8) Save
             doc.save("~//Downloads/TaggedSignatureField5.pdf");
 
@@ -0,0 +1,128 @@
+package example.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Puts the widgets of one page into visual reading order: top to bottom, left to right.
+ * <p>
+ * The widgets are sorted once by their top edge and swept into row bands; a widget joins the
+ * current band when its vertical centre is not below the bottom of the widget that opened the band.
+ * Each band is then sorted by its left edge. Both steps are O(n log n), so dense forms with
+ * thousands of fields never pay for pairwise comparisons between rows. Top, bottom and left are
+ * those of the page as displayed, so the page /Rotate is applied to the rectangles first.
+ */
+public final class WidgetReadingOrder {
+    /** /Tabs key of a page; /S means annotations are visited in structure order. */
+    public static final COSName TABS = COSName.getPDFName("Tabs");
+
+    private WidgetReadingOrder() {
+    }
+
+    /**
+     * Returns {@code widgets} in reading order. The input list is not modified.
+     *
+     * @param rect the widget rectangle as {llx, lly, urx, ury}; {@code null} for widgets without one,
+     *             which are kept at the end in their original order
+     */
+    public static <T> List<T> sort(List<T> widgets, Function<? super T, float[]> rect) {
+        return sort(widgets, rect, 0);
+    }
+
+    /**
+     * Returns {@code widgets} of a page with the given /Rotate in reading order. The input list is
+     * not modified.
+     *
+     * @param rect     the widget rectangle in default user space as {llx, lly, urx, ury}; {@code null}
+     *                 for widgets without one, which are kept at the end in their original order
+     * @param rotation the page /Rotate, clockwise degrees; values that are not a multiple of 90 are ignored
+     */
+    public static <T> List<T> sort(List<T> widgets, Function<? super T, float[]> rect, int rotation) {
+        int quarterTurns = rotation % 90 == 0 ? Math.floorMod(rotation / 90, 4) : 0;
+        List<Box<T>> boxes = new ArrayList<>(widgets.size());
+        List<T> unplaced = new ArrayList<>();
+        for (T widget : widgets) {
+            float[] r = rect.apply(widget);
+            if (r == null || r.length < 4) {
+                unplaced.add(widget);
+                continue;
+            }
+            // corners in displayed orientation, translation does not matter for the order
+            float x0 = r[0], y0 = r[1], x1 = r[2], y1 = r[3];
+            for (int turn = 0; turn < quarterTurns; turn++) {
+                // a quarter turn clockwise maps (x, y) to (y, -x)
+                float t0 = x0, t1 = x1;
+                x0 = y0;
+                y0 = -t0;
+                x1 = y1;
+                y1 = -t1;
+            }
+            boxes.add(new Box<>(boxes.size(), widget,
+                    Math.min(x0, x1), Math.min(y0, y1), Math.max(y0, y1)));
+        }
+
+        // -- Step 1: Sort by top edge, highest first (PDF y grows upwards)
+        boxes.sort(Comparator.comparingDouble((Box<T> b) -> -b.top).thenComparingInt(b -> b.index));
+
+        // -- Step 2: Sweep into row bands and sort each band left to right
+        Comparator<Box<T>> byLeft = Comparator.comparingDouble((Box<T> b) -> b.left)
+                .thenComparingDouble(b -> -b.top)
+                .thenComparingInt(b -> b.index);
+        int bandStart = 0;
+        for (int i = 1; i <= boxes.size(); i++) {
+            if (i == boxes.size() || boxes.get(i).centre() < boxes.get(bandStart).bottom) {
+                boxes.subList(bandStart, i).sort(byLeft);
+                bandStart = i;
+            }
+        }
+
+        List<T> ordered = new ArrayList<>(widgets.size());
+        for (Box<T> box : boxes) {
+            ordered.add(box.widget);
+        }
+        ordered.addAll(unplaced);
+        return ordered;
+    }
+
+    /** Reads the /Rect of a widget dictionary, {@code null} unless it is an array of four numbers. */
+    public static float[] rectOf(COSDictionary widget) {
+        COSArray rect = widget.getCOSArray(COSName.RECT);
+        if (rect == null || rect.size() != 4) return null;
+
+        float[] values = new float[4];
+        for (int i = 0; i < 4; i++) {
+            COSBase value = rect.getObject(i);
+            if (!(value instanceof COSNumber)) return null;
+            values[i] = ((COSNumber) value).floatValue();
+        }
+        return values;
+    }
+
+    private static final class Box<T> {
+        final int index;
+        final T widget;
+        final float left;
+        final float bottom;
+        final float top;
+
+        Box(int index, T widget, float left, float bottom, float top) {
+            this.index = index;
+            this.widget = widget;
+            this.left = left;
+            this.bottom = bottom;
+            this.top = top;
+        }
+
+        float centre() {
+            return (bottom + top) / 2;
+        }
+    }
+}